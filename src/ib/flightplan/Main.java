@@ -1,6 +1,9 @@
 package ib.flightplan;
 
 import ib.flightplan.comp.Airport;
+import ib.flightplan.comp.AirportAttributes;
+import ib.flightplan.comp.AirportMetadata;
+import ib.flightplan.comp.CapabilityFilter;
 import ib.flightplan.comp.Flight;
 import ib.flightplan.comp.Point;
 import ib.flightplan.exception.NoAirportInRangeException;
@@ -16,6 +19,7 @@ import java.nio.file.Files;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.StringTokenizer;
 
@@ -24,6 +28,7 @@ public class Main {
 	public static final double DISTANCE_FAC = 111;
 	public static final String REGION = "E";
 	public static final String DATABASE_FILENAME = "airports.dat";
+	public static final String ATTRIBUTES_FILENAME = "runways.dat";
 	public static final int DEF_ALOGIRHM = 1;
 	private static Airport start;
 	private static Airport destination;
@@ -31,13 +36,30 @@ public class Main {
 	public static void main(String[] args) throws Exception {
 		// TODO Auto-generated method stub
 		int algorithm = DEF_ALOGIRHM;
+		long timeLimit = 0;
+		CapabilityFilter requirements = null;
 		
-		if (args.length == 6 || args.length == 5)
+		if (args.length >= 5 && args.length <= 8)
 		{
-			if (args.length == 6 && args[5] != null)
+			if (args.length >= 6 && args[5] != null)
 			{
 				algorithm = Integer.parseInt(args[5]);
 			}
+			if (args.length >= 7 && args[6] != null)
+			{
+				timeLimit = Long.parseLong(args[6]);
+			}
+			if (args.length == 8 && args[7] != null)
+			{
+				try {
+					requirements = CapabilityFilter.parse(args[7]);
+				} catch (IllegalArgumentException e)
+				{
+					System.err.println("\nERROR: Please check your requirements argument!\n"
+							+ e.getMessage() + "\n");
+					return;
+				}
+			}
 			String src = args[0] , dst = args[1];
 			double range = 0;
 			double speed = 0;
@@ -72,6 +94,18 @@ public class Main {
 			} else
 			{
 				Flight flight = new Flight(start, destination, range, startTime, speed);
+				flight.setTimeLimit(timeLimit);
+				if (requirements != null)
+				{
+					AirportAttributes attributes = new AirportAttributes(database.size());
+					if (executeAttributesLoading(attributes, database) == 0)
+					{
+						System.err.println("\nERROR: No airport attributes loaded from " + ATTRIBUTES_FILENAME + ".\n"
+								+ "Requirements cannot be checked.\n");
+						return;
+					}
+					flight.setEligibleAirports(requirements.evaluate(attributes));
+				}
 				try {
 					flight.computateFlight(algorithm, database);
 				} catch (NoAirportInRangeException e) {
@@ -108,6 +142,7 @@ public class Main {
 	{
 		boolean found1 = false;
 		boolean found2 = false;
+		AirportMetadata metadata = new AirportMetadata();
 		InputStream in = Main.class.getResourceAsStream("/" + DATABASE_FILENAME);
 		try (BufferedReader br = new BufferedReader(new InputStreamReader(in))) 
 		{
@@ -132,7 +167,7 @@ public class Main {
 					
 					if (REGION.equalsIgnoreCase(reg))
 					{
-						Airport a = new Airport(iata, city, country, new Point(locx, locy));
+						Airport a = new Airport(metadata, metadata.add(iata, city, country), new Point(locx, locy));
 						db.add(a);
 						if (iata.equalsIgnoreCase(src))
 						{
@@ -148,6 +183,7 @@ public class Main {
 				}
 				line = br.readLine();
 			}
+			metadata.trim();
 			
 		} catch (IOException | NullPointerException e) {
 			System.err.println("\nERROR: Database file does not exist or corrupted.\n"
@@ -155,11 +191,77 @@ public class Main {
 		}
 		return (found1 && found2);
 	}
+	/**
+	 * Loads additional attributes of airports from CSV file.
+	 * <p>
+	 * Each line contains IATA code, length of longest runway in meters,
+	 * elevation in feet, runway surface and fire category, e.g.
+	 * "WAW",3690,362,"CON",9
+	 * <p>
+	 * Ignores airports which are not in database. Malformed lines, including
+	 * negative runway length or fire category outside 0-10, are skipped with a warning.
+	 * 
+	 * @param attributes - attributes of airports from database
+	 * @param db - database of airports
+	 * @return number of airports with attributes
+	 */
+	public static int executeAttributesLoading (AirportAttributes attributes, HashSet<Airport> db)
+	{
+		HashMap<String, Airport> byIATA = new HashMap<>();
+		for (Airport airport : db) {
+			byIATA.put(airport.getIATA().toUpperCase(), airport);
+		}
+		
+		int count = 0;
+		int lineNumber = 0;
+		InputStream in = Main.class.getResourceAsStream("/" + ATTRIBUTES_FILENAME);
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(in))) 
+		{
+			String line = br.readLine();
+			while(line != null)
+			{
+				lineNumber++;
+				StringTokenizer tokenizer = new StringTokenizer(line, ",\"");
+				boolean valid = false;
+				if (tokenizer.countTokens() == 5)
+				{
+					try {
+						Airport airport = byIATA.get(tokenizer.nextToken().toUpperCase());
+						int runway = Integer.parseInt(tokenizer.nextToken().trim());
+						int elevation = Integer.parseInt(tokenizer.nextToken().trim());
+						byte surface = AirportAttributes.parseSurface(tokenizer.nextToken().trim());
+						int fire = Integer.parseInt(tokenizer.nextToken().trim());
+						
+						valid = runway >= 0 && fire >= AirportAttributes.MIN_FIRE_CATEGORY 
+								&& fire <= AirportAttributes.MAX_FIRE_CATEGORY;
+						if (valid && airport != null)
+						{
+							attributes.set(airport.getId(), runway, elevation, surface, fire);
+							count++;
+						}
+					} catch (NumberFormatException e) {
+						valid = false;
+					}
+				}
+				//skip only malformed line, its airport does not meet any requirement
+				if (!valid && !line.trim().isEmpty())
+				{
+					System.err.println("WARNING: Skipping malformed line " + lineNumber + " of "
+							+ ATTRIBUTES_FILENAME + ": " + line);
+				}
+				line = br.readLine();
+			}
+			
+		} catch (IOException | NullPointerException e) {
+			System.err.println("\nERROR: Attributes file does not exist or could not be read.\n");
+		}
+		return count;
+	}
 	public static void printHelp()
 	{
 		System.out.printf("This program finds suitable emergency landings for a flight\n"
 				+ "from given source to destination. \n"
-				+ "\t Usage: EmergencyLandings.jar [source] [dest] [range] [speed] [time] [algorithm]\n"
+				+ "\t Usage: EmergencyLandings.jar [source] [dest] [range] [speed] [time] [algorithm] [limit] [requirements]\n"
 				+ "\t\tsource - source IATA code\n"
 				+ "\t\tdest - destination IATA code\n"
 				+ "\t\trange - maximum distance in km form flight's path to emergency airport\n"
@@ -169,6 +271,9 @@ public class Main {
 				+ "\t\t\t 1 - optimal (DEFAULT)\n"
 				+ "\t\t\t 2 - safe (SLOW!)\n"
 				+ "\t\t\t 3 - minimal\n"
+				+ "\t\tlimit - OPTIONAL - computation time limit in milliseconds, 0 for no limit\n"
+				+ "\t\trequirements - OPTIONAL - emergency airport capabilities, comma separated:\n"
+				+ "\t\t\t runway=[m] elevation=[ft] fire=[category] paved\n"
 				+ "\n Program outputs data in following format\n"
 				+ "[IATA code] [city] [country] [longitude] [latitude] [hour of passing]\n\n"
 				+ "Created by Igor Boczkaja\n");
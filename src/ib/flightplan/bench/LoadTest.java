@@ -0,0 +1,486 @@
+package ib.flightplan.bench;
+
+import ib.flightplan.Main;
+import ib.flightplan.comp.Airport;
+import ib.flightplan.comp.CorridorFilter;
+import ib.flightplan.comp.Flight;
+import ib.flightplan.comp.Point;
+import ib.flightplan.exception.NoAirportInRangeException;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of flight planning.
+ * <p>
+ * Generates random flights between airports from database (or replays recorded
+ * ones), computes them with given concurrency and rate and reports throughput,
+ * latency percentiles and allocation rate.
+ * <p>
+ * Latency of each request is measured from its scheduled start, so requests
+ * delayed by busy workers are counted too.
+ * <p>
+ * With -verify, columnar range checks are compared with scalar ones instead.
+ */
+public class LoadTest {
+
+	public static final double SHORT_HAUL_KM = 1500;
+	public static final double[] RANGES = {100, 150, 200, 300, 500};
+	public static final int MAX_ATTEMPTS = 10000; //random pairs tried for a single request
+	public static final int[] ALGORITHMS = {1, 1, 1, 1, 3, 3, 3, 2}; //safe algorithm is slow, use it less often
+
+	private static int requests = 1000;
+	private static int concurrency = Runtime.getRuntime().availableProcessors();
+	private static double rate = 0;
+	private static long seed = 1;
+	private static long timeLimit = 0;
+	private static int warmup = 200;
+	private static String recordFile = null;
+	private static String replayFile = null;
+	private static boolean verify = false;
+
+	/**
+	 * Single recorded planning request.
+	 */
+	private static class Request
+	{
+		String src;
+		String dst;
+		double range;
+		double speed;
+		int algorithm;
+
+		@Override
+		public String toString()
+		{
+			return src + "," + dst + "," + range + "," + speed + "," + algorithm;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (!parseArgs(args))
+		{
+			printHelp();
+			return;
+		}
+
+		HashSet<Airport> database = new HashSet<>();
+		Main.executeDbCreation(database, null, null);
+		HashMap<String, Airport> byIATA = new HashMap<>();
+		for (Airport airport : database) {
+			byIATA.put(airport.getIATA(), airport);
+		}
+		if (byIATA.size() < 2)
+		{
+			System.err.println("\nERROR: Database contains too few airports.\n");
+			return;
+		}
+
+		ArrayList<Request> log;
+		try {
+			log = replayFile != null ? readLog(replayFile)
+					: generate(new ArrayList<>(byIATA.values()), database, requests);
+		} catch (IllegalStateException e) {
+			System.err.println("\nERROR: " + e.getMessage() + "\n");
+			return;
+		}
+		for (int i = log.size() - 1; i >= 0; i--)
+		{
+			Request r = log.get(i);
+			if (!byIATA.containsKey(r.src) || !byIATA.containsKey(r.dst))
+			{
+				System.err.println("WARNING: Skipping request with unknown airport: " + r);
+				log.remove(i);
+			}
+		}
+		if (recordFile != null)
+		{
+			writeLog(recordFile, log);
+		}
+
+		if (verify)
+		{
+			System.exit(verify(log, database, byIATA) == 0 ? 0 : 1);
+		}
+
+		//warm up JIT compiler with the same mix, results are not reported
+		run(log.subList(0, Math.min(warmup, log.size())), database, byIATA, false);
+		run(log, database, byIATA, true);
+	}
+
+	/**
+	 * Generates random mix of short and long haul flights with various ranges,
+	 * speeds and algorithms. Half of flights are short haul.
+	 * <p>
+	 * Only flights which can be planned with optimal algorithm are used, so
+	 * requests measure planning rather than failing at the first gap in coverage.
+	 * @param airports - airports to choose from
+	 * @param database - full airport database
+	 * @param count - number of flights
+	 * @return list of requests
+	 * @throws IllegalStateException if no suitable flight is found in MAX_ATTEMPTS random pairs
+	 */
+	private static ArrayList<Request> generate(ArrayList<Airport> airports, HashSet<Airport> database, int count)
+	{
+		Random random = new Random(seed);
+		ArrayList<Request> log = new ArrayList<>();
+		int attempts = 0;
+		while (log.size() < count)
+		{
+			if (++attempts > MAX_ATTEMPTS)
+			{
+				throw new IllegalStateException("Could not find plannable " 
+						+ (log.size() % 2 == 0 ? "short" : "long") + " haul flight in " + MAX_ATTEMPTS 
+						+ " random airport pairs, database may not contain such flights.");
+			}
+			Airport a = airports.get(random.nextInt(airports.size()));
+			Airport b = airports.get(random.nextInt(airports.size()));
+			double distance = a.calculateDistance(b.getLocation());
+			boolean shortHaul = log.size() % 2 == 0;
+			if (a == b || (distance < SHORT_HAUL_KM) != shortHaul)
+			{
+				continue;
+			}
+			Request r = new Request();
+			r.src = a.getIATA();
+			r.dst = b.getIATA();
+			r.range = RANGES[random.nextInt(RANGES.length)];
+			r.speed = 600 + 10*random.nextInt(36);
+			r.algorithm = ALGORITHMS[random.nextInt(ALGORITHMS.length)];
+			try {
+				new Flight(a, b, r.range, new Date(0), r.speed).findEmergencyLandings(1, database);
+			} catch (NoAirportInRangeException e) {
+				continue;
+			}
+			log.add(r);
+			attempts = 0;
+		}
+		return log;
+	}
+
+	/**
+	 * Computes all requests and prints the report.
+	 * @param log - requests to compute
+	 * @param database - full airport database
+	 * @param byIATA - airports by IATA code
+	 * @param report - false if results should not be printed
+	 */
+	private static void run(final List<Request> log, final HashSet<Airport> database,
+			final HashMap<String, Airport> byIATA, boolean report) throws InterruptedException
+	{
+		final long[] latencies = new long[log.size()];
+		final boolean[] failures = new boolean[log.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final AtomicInteger partial = new AtomicInteger();
+		final AtomicLong allocated = new AtomicLong();
+		final Date departure = new Date(0);
+		final long start = System.nanoTime();
+
+		ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+		for (int t = 0; t < concurrency; t++)
+		{
+			pool.execute(new Runnable() {
+				@Override
+				public void run()
+				{
+					long allocStart = allocatedBytes();
+					int i;
+					while ((i = next.getAndIncrement()) < log.size())
+					{
+						Request r = log.get(i);
+						//open model: request i is scheduled i/rate seconds after start
+						long scheduled = rate > 0 ? start + (long)(i*1e9/rate) : System.nanoTime();
+						long wait = scheduled - System.nanoTime();
+						if (wait > 0)
+						{
+							try {
+								TimeUnit.NANOSECONDS.sleep(wait);
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+
+						Flight flight = new Flight(byIATA.get(r.src), byIATA.get(r.dst), r.range, departure, r.speed);
+						flight.setTimeLimit(timeLimit);
+						try {
+							flight.findEmergencyLandings(r.algorithm, database);
+							if (!flight.isComplete())
+							{
+								partial.incrementAndGet();
+							}
+						} catch (NoAirportInRangeException e) {
+							failed.incrementAndGet();
+							failures[i] = true;
+						}
+						latencies[i] = System.nanoTime() - scheduled;
+					}
+					allocated.addAndGet(allocatedBytes() - allocStart);
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		double seconds = (System.nanoTime() - start)/1e9;
+		if (!report)
+		{
+			return;
+		}
+
+		//failed requests stop at first gap in coverage, report them separately
+		long[] planned = new long[log.size() - failed.get()];
+		long[] notSafe = new long[failed.get()];
+		for (int i = 0, p = 0, f = 0; i < latencies.length; i++)
+		{
+			if (failures[i])
+			{
+				notSafe[f++] = latencies[i];
+			} else
+			{
+				planned[p++] = latencies[i];
+			}
+		}
+		System.out.printf("requests: %d, threads: %d, rate: %s\n", log.size(), concurrency,
+				rate > 0 ? String.format("%.1f/s", rate) : "unlimited");
+		System.out.printf("throughput: %.1f req/s, not safe: %d, stopped by time limit: %d\n",
+				log.size()/seconds, failed.get(), partial.get());
+		printLatency("latency ms", planned);
+		if (notSafe.length > 0)
+		{
+			printLatency("not safe latency ms", notSafe);
+		}
+		System.out.printf("allocation: %.1f MB/s, %.1f KB/req\n\n",
+				allocated.get()/seconds/(1 << 20), allocated.get()/(double)Math.max(1, log.size())/1024);
+	}
+
+	/**
+	 * Compares columnar range checks with scalar ones for all requests.
+	 * <p>
+	 * For points along each flight path CorridorFilter.markInRange() and getClosest()
+	 * are compared with Point.isInRange() and Point.calculateDistance() of every airport.
+	 * Then whole computation is compared in both modes of Flight.
+	 * @param log - requests to check
+	 * @param database - full airport database
+	 * @param byIATA - airports by IATA code
+	 * @return number of requests with different results
+	 */
+	private static int verify(List<Request> log, HashSet<Airport> database, HashMap<String, Airport> byIATA)
+	{
+		int mismatches = 0;
+		for (Request r : log) {
+			Airport a = byIATA.get(r.src);
+			Airport b = byIATA.get(r.dst);
+			if (!verifyFilter(a.getLocation(), b.getLocation(), r.range, database) || !verifyFlight(r, a, b, database))
+			{
+				System.err.println("MISMATCH: " + r);
+				mismatches++;
+			}
+		}
+		System.out.printf("verified requests: %d, mismatches: %d\n", log.size(), mismatches);
+		return mismatches;
+	}
+
+	private static boolean verifyFilter(Point start, Point end, double range, HashSet<Airport> database)
+	{
+		CorridorFilter columns = new CorridorFilter(database);
+		HashSet<Airport> marked = new HashSet<>();
+		double distance = Point.calculateDistance(start, end);
+		double steps = Math.floor(4*distance/range + 1); //denser than Flight.getClosest()
+
+		for (int i = 0; i <= steps; i++)
+		{
+			Point p = new Point(start.x + (end.x - start.x)*i/steps, start.y + (end.y - start.y)*i/steps);
+
+			//same checks as Flight.getClosest() and Flight.getClosestAirport() in scalar mode
+			Airport closest = null;
+			double mindist = distance;
+			double curDist = 0;
+			for (Airport airport : database) {
+				if (airport.isInRange(p, range))
+				{
+					marked.add(airport);
+					if ((curDist = airport.calculateDistance(p)) < mindist)
+					{
+						closest = airport;
+						mindist = curDist;
+					}
+				}
+			}
+
+			columns.markInRange(p, range);
+			if (columns.getClosest(p, range, distance) != closest || !columns.getMarked().equals(marked))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean verifyFlight(Request r, Airport a, Airport b, HashSet<Airport> database)
+	{
+		ArrayList<ArrayList<Airport>> results = new ArrayList<>();
+		for (boolean columnar : new boolean[] {true, false}) {
+			Flight flight = new Flight(a, b, r.range, new Date(0), r.speed);
+			flight.setColumnar(columnar);
+			try {
+				results.add(flight.findEmergencyLandings(r.algorithm, database));
+			} catch (NoAirportInRangeException e) {
+				results.add(null);
+			}
+		}
+		return results.get(0) == null ? results.get(1) == null : results.get(0).equals(results.get(1));
+	}
+
+	private static void printLatency(String label, long[] latencies)
+	{
+		Arrays.sort(latencies);
+		System.out.printf("%s: p50 %.3f, p99 %.3f, p999 %.3f, max %.3f\n", label,
+				percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+				latencies.length > 0 ? latencies[latencies.length - 1]/1e6 : 0);
+	}
+
+	private static double percentile(long[] sorted, double p)
+	{
+		if (sorted.length == 0)
+		{
+			return 0;
+		}
+		int index = (int)Math.ceil(p*sorted.length) - 1;
+		return sorted[Math.max(0, index)]/1e6;
+	}
+
+	/**
+	 * @return bytes allocated by current thread, 0 if not supported by JVM
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads request log, one request per line in format
+	 * [source],[dest],[range],[speed],[algorithm]
+	 * @param file - name of log file
+	 * @return list of requests
+	 */
+	private static ArrayList<Request> readLog(String file) throws IOException
+	{
+		ArrayList<Request> log = new ArrayList<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(file)))
+		{
+			String line;
+			while ((line = br.readLine()) != null)
+			{
+				StringTokenizer tokenizer = new StringTokenizer(line, ",");
+				if (tokenizer.countTokens() == 5)
+				{
+					Request r = new Request();
+					r.src = tokenizer.nextToken();
+					r.dst = tokenizer.nextToken();
+					r.range = Double.parseDouble(tokenizer.nextToken());
+					r.speed = Double.parseDouble(tokenizer.nextToken());
+					r.algorithm = Integer.parseInt(tokenizer.nextToken());
+					log.add(r);
+				}
+			}
+		}
+		return log;
+	}
+
+	private static void writeLog(String file, ArrayList<Request> log) throws IOException
+	{
+		try (PrintWriter pw = new PrintWriter(new FileWriter(file)))
+		{
+			for (Request r : log) {
+				pw.println(r.toString());
+			}
+		}
+	}
+
+	private static boolean parseArgs(String[] args)
+	{
+		try {
+			for (int i = 0; i < args.length; i += 2)
+			{
+				if (args[i].equals("-verify"))
+				{
+					verify = true;
+					i--;
+					continue;
+				}
+				String value = args[i + 1];
+				switch (args[i]) {
+				case "-n":
+					requests = Integer.parseInt(value);
+					break;
+				case "-c":
+					concurrency = Integer.parseInt(value);
+					break;
+				case "-r":
+					rate = Double.parseDouble(value);
+					break;
+				case "-seed":
+					seed = Long.parseLong(value);
+					break;
+				case "-limit":
+					timeLimit = Long.parseLong(value);
+					break;
+				case "-warmup":
+					warmup = Integer.parseInt(value);
+					break;
+				case "-record":
+					recordFile = value;
+					break;
+				case "-replay":
+					replayFile = value;
+					break;
+				default:
+					return false;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e)
+		{
+			return false;
+		}
+		return concurrency > 0;
+	}
+
+	public static void printHelp()
+	{
+		System.out.printf("Load test of flight planning.\n"
+				+ "\t Usage: LoadTest [-n requests] [-c threads] [-r rate] [-seed seed] [-limit ms]\n"
+				+ "\t\t [-warmup requests] [-record file] [-replay file] [-verify]\n"
+				+ "\t\t-n - number of generated requests (DEFAULT 1000)\n"
+				+ "\t\t-c - number of worker threads (DEFAULT number of CPUs)\n"
+				+ "\t\t-r - requests per second, 0 for unlimited (DEFAULT)\n"
+				+ "\t\t-seed - seed of random route mix (DEFAULT 1)\n"
+				+ "\t\t-limit - computation time limit of a request in milliseconds\n"
+				+ "\t\t-warmup - number of requests run before measurement (DEFAULT 200)\n"
+				+ "\t\t-record - file to save requests to\n"
+				+ "\t\t-replay - file to read requests from instead of generating them\n"
+				+ "\t\t-verify - compare columnar range checks with scalar ones instead of load test,\n"
+				+ "\t\t\t exits with status 1 on mismatch\n");
+	}
+}
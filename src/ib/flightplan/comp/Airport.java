@@ -3,16 +3,19 @@ package ib.flightplan.comp;
 import java.util.ArrayList;
 
 public class Airport {
+	private int id;
 	private Point location;
-	private String city;
-	private String country;
-	private String iata;
+	private AirportMetadata metadata;
 	
-	public Airport (String iata, String city, String country, Point loc)
+	/**
+	 * @param metadata - store containing IATA code, city and country of airport
+	 * @param id - index of airport in database and metadata store, used by columnar 
+	 * data such as AirportAttributes
+	 */
+	public Airport (AirportMetadata metadata, int id, Point loc)
 	{
-		this.iata = iata;
-		this.city = city;
-		this.country = country;
+		this.metadata = metadata;
+		this.id = id;
 		this.location = loc;
 	}
 	public double calculateDistance (Point dest)
@@ -24,17 +27,21 @@ public class Airport {
 		return this.location.isInRange(p, range);
 	}
 	
+	public int getId()
+	{
+		return this.id;
+	}
 	public String getCity()
 	{
-		return this.city;
+		return metadata.getCity(id);
 	}
 	public String getCountry()
 	{
-		return this.country;
+		return metadata.getCountry(id);
 	}
 	public String getIATA()
 	{
-		return this.iata;
+		return metadata.getIATA(id);
 	}
 	public Point getLocation()
 	{
@@ -43,7 +50,7 @@ public class Airport {
 	@Override
 	public String toString()
 	{
-		String desc = this.iata + " " + this.city + " " + this.country + " " + String.format("%.4f %.4f", location.y, location.x);
+		String desc = getIATA() + " " + getCity() + " " + getCountry() + " " + String.format("%.4f %.4f", location.y, location.x);
 		return desc;
 	}
 	
@@ -55,7 +62,10 @@ public class Airport {
 		if (v instanceof Airport)
 		{
 			Airport ptr = (Airport) v;
-			value = ptr.iata.equals(this.iata);
+			int code = metadata.getIATACode(id);
+			int ptrCode = ptr.metadata.getIATACode(ptr.id);
+			//compare packed codes, strings only if none of the codes could be packed
+			value = (code != 0 || ptrCode != 0) ? code == ptrCode : ptr.getIATA().equals(getIATA());
 		}
 		return value;
 	}
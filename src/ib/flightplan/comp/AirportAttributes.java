@@ -0,0 +1,103 @@
+package ib.flightplan.comp;
+
+import java.util.Arrays;
+
+/**
+ * Additional attributes of airports, stored in columns indexed by airport id.
+ * <p>
+ * Airports without attributes are marked as unknown and do not meet any
+ * capability requirement.
+ */
+public class AirportAttributes {
+	public static final byte SURFACE_UNKNOWN = 0;
+	public static final byte SURFACE_PAVED = 1;
+	public static final byte SURFACE_UNPAVED = 2;
+	public static final int MIN_FIRE_CATEGORY = 0;
+	public static final int MAX_FIRE_CATEGORY = 10;
+
+	int[] runway;
+	int[] elevation;
+	byte[] surface;
+	byte[] fire;
+	boolean[] known;
+
+	/**
+	 * @param size - number of airports in database
+	 */
+	public AirportAttributes(int size)
+	{
+		this.runway = new int[size];
+		this.elevation = new int[size];
+		this.surface = new byte[size];
+		this.fire = new byte[size];
+		this.known = new boolean[size];
+	}
+
+	/**
+	 * Sets attributes of an airport.
+	 * @param id - airport id
+	 * @param runway - length of longest runway in meters
+	 * @param elevation - elevation in feet
+	 * @param surface - surface of longest runway, one of SURFACE_ constants
+	 * @param fire - rescue and fire fighting category (0-10)
+	 * @throws IllegalArgumentException if runway is negative or fire category is out of range
+	 */
+	public void set(int id, int runway, int elevation, byte surface, int fire)
+	{
+		if (runway < 0 || fire < MIN_FIRE_CATEGORY || fire > MAX_FIRE_CATEGORY)
+		{
+			throw new IllegalArgumentException("Invalid attributes of airport " + id 
+					+ ": runway " + runway + ", fire category " + fire);
+		}
+		ensureCapacity(id + 1);
+		this.runway[id] = runway;
+		this.elevation[id] = elevation;
+		this.surface[id] = surface;
+		this.fire[id] = (byte) fire;
+		this.known[id] = true;
+	}
+
+	/**
+	 * Converts surface description to one of SURFACE_ constants.
+	 * @param surface - surface code, e.g. ASP, CON, GRS
+	 * @return surface constant
+	 */
+	public static byte parseSurface(String surface)
+	{
+		switch (surface.toUpperCase()) {
+		case "ASP":
+		case "ASPHALT":
+		case "CON":
+		case "CONCRETE":
+		case "PAVED":
+			return SURFACE_PAVED;
+		case "GRS":
+		case "GRASS":
+		case "GRV":
+		case "GRAVEL":
+		case "DIRT":
+		case "UNPAVED":
+			return SURFACE_UNPAVED;
+		default:
+			return SURFACE_UNKNOWN;
+		}
+	}
+
+	public int size()
+	{
+		return known.length;
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if (size > known.length)
+		{
+			int newSize = Math.max(size, 2*known.length);
+			runway = Arrays.copyOf(runway, newSize);
+			elevation = Arrays.copyOf(elevation, newSize);
+			surface = Arrays.copyOf(surface, newSize);
+			fire = Arrays.copyOf(fire, newSize);
+			known = Arrays.copyOf(known, newSize);
+		}
+	}
+}
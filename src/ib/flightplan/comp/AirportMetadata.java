@@ -0,0 +1,161 @@
+package ib.flightplan.comp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compact store of airport names, indexed by airport id.
+ * <p>
+ * Countries are kept in a dictionary and referenced by number, city names are
+ * packed into a single byte array and IATA codes into ints. Strings are
+ * created only when requested, e.g. when printing results.
+ */
+public class AirportMetadata {
+	private static final int INITIAL_SIZE = 1024;
+
+	private int size = 0;
+	private int[] iataCodes = new int[INITIAL_SIZE];
+	private short[] countryIds = new short[INITIAL_SIZE];
+	private int[] cityOffsets = new int[INITIAL_SIZE + 1];
+	private byte[] cityBytes = new byte[16*INITIAL_SIZE];
+	private ArrayList<String> countries = new ArrayList<>();
+	private HashMap<String, Short> countryIndex = new HashMap<>();
+	private HashMap<Integer, String> otherIATA = new HashMap<>(); //codes which do not fit in an int
+
+	/**
+	 * Adds an airport to the store.
+	 * @param iata - IATA code
+	 * @param city - city name
+	 * @param country - country name
+	 * @return id of added airport
+	 */
+	public int add(String iata, String city, String country)
+	{
+		ensureCapacity(size + 1);
+		int id = size;
+
+		iataCodes[id] = packIATA(iata);
+		if (iataCodes[id] == 0)
+		{
+			otherIATA.put(id, iata);
+		}
+
+		Short countryId = countryIndex.get(country);
+		if (countryId == null)
+		{
+			if (countries.size() > Short.MAX_VALUE)
+			{
+				throw new IllegalStateException("Too many countries in database");
+			}
+			countryId = (short) countries.size();
+			countries.add(country);
+			countryIndex.put(country, countryId);
+		}
+		countryIds[id] = countryId;
+
+		byte[] bytes = city.getBytes(StandardCharsets.UTF_8);
+		int offset = cityOffsets[id];
+		if (offset + bytes.length > cityBytes.length)
+		{
+			cityBytes = Arrays.copyOf(cityBytes, Math.max(offset + bytes.length, 2*cityBytes.length));
+		}
+		System.arraycopy(bytes, 0, cityBytes, offset, bytes.length);
+		cityOffsets[id + 1] = offset + bytes.length;
+
+		size++;
+		return id;
+	}
+
+	public String getIATA(int id)
+	{
+		int code = iataCodes[id];
+		if (code == 0)
+		{
+			return otherIATA.get(id);
+		}
+		char[] chars = new char[4];
+		int length = 0;
+		for (int shift = 24; shift >= 0; shift -= 8)
+		{
+			char c = (char) ((code >>> shift) & 0xFF);
+			if (c != 0)
+			{
+				chars[length++] = c;
+			}
+		}
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * @param id - airport id
+	 * @return IATA code packed into an int, 0 if it does not fit
+	 */
+	public int getIATACode(int id)
+	{
+		return iataCodes[id];
+	}
+
+	public String getCity(int id)
+	{
+		int offset = cityOffsets[id];
+		return new String(cityBytes, offset, cityOffsets[id + 1] - offset, StandardCharsets.UTF_8);
+	}
+
+	public String getCountry(int id)
+	{
+		return countries.get(countryIds[id]);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Releases unused space, should be called after all airports are added.
+	 */
+	public void trim()
+	{
+		iataCodes = Arrays.copyOf(iataCodes, size);
+		countryIds = Arrays.copyOf(countryIds, size);
+		cityOffsets = Arrays.copyOf(cityOffsets, size + 1);
+		cityBytes = Arrays.copyOf(cityBytes, cityOffsets[size]);
+	}
+
+	/**
+	 * Packs up to 4 ASCII characters into an int, first character in highest byte.
+	 * @param iata - IATA code
+	 * @return packed code, 0 if code cannot be packed
+	 */
+	private static int packIATA(String iata)
+	{
+		if (iata.isEmpty() || iata.length() > 4)
+		{
+			return 0;
+		}
+		int code = 0;
+		for (int i = 0; i < 4; i++)
+		{
+			char c = i < iata.length() ? iata.charAt(i) : 0;
+			if (i < iata.length() && (c == 0 || c > 0x7F))
+			{
+				return 0;
+			}
+			code = (code << 8) | c;
+		}
+		return code;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > iataCodes.length)
+		{
+			int newSize = Math.max(capacity, 2*iataCodes.length);
+			iataCodes = Arrays.copyOf(iataCodes, newSize);
+			countryIds = Arrays.copyOf(countryIds, newSize);
+			cityOffsets = Arrays.copyOf(cityOffsets, newSize + 1);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package ib.flightplan.comp;
+
+import java.util.BitSet;
+import java.util.StringTokenizer;
+
+/**
+ * Minimal capabilities an emergency airport must have.
+ * <p>
+ * Requirements are evaluated over attribute columns at once, giving a bit set
+ * of eligible airport ids.
+ */
+public class CapabilityFilter {
+	public static final int NO_ELEVATION_LIMIT = Integer.MAX_VALUE;
+
+	private int minRunway;
+	private int maxElevation;
+	private boolean paved;
+	private int minFire;
+
+	/**
+	 * @param minRunway - minimal runway length in meters, 0 for any
+	 * @param maxElevation - maximal elevation in feet, NO_ELEVATION_LIMIT for any
+	 * @param paved - true if runway must be paved
+	 * @param minFire - minimal rescue and fire fighting category, 0 for any
+	 */
+	public CapabilityFilter(int minRunway, int maxElevation, boolean paved, int minFire)
+	{
+		this.minRunway = minRunway;
+		this.maxElevation = maxElevation;
+		this.paved = paved;
+		this.minFire = minFire;
+	}
+
+	/**
+	 * Parses requirements given as comma separated list, e.g.
+	 * runway=2500,elevation=5000,fire=7,paved
+	 * <p>
+	 * Runway length must be positive and fire category between 1 and 10,
+	 * elevation may be any number, also 0 or negative.
+	 * @param requirements - list of requirements
+	 * @return capability filter
+	 * @throws IllegalArgumentException if requirement is unknown or malformed
+	 */
+	public static CapabilityFilter parse(String requirements)
+	{
+		int minRunway = 0, maxElevation = NO_ELEVATION_LIMIT, minFire = 0;
+		boolean paved = false;
+
+		StringTokenizer tokenizer = new StringTokenizer(requirements, ",");
+		while (tokenizer.hasMoreTokens())
+		{
+			String token = tokenizer.nextToken().trim();
+			int eq = token.indexOf('=');
+			String key = eq < 0 ? token : token.substring(0, eq);
+			String value = eq < 0 ? null : token.substring(eq + 1);
+			switch (key.toLowerCase()) {
+			case "runway":
+				minRunway = parseValue(token, value, 1, Integer.MAX_VALUE);
+				break;
+			case "elevation":
+				maxElevation = parseValue(token, value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+				break;
+			case "fire":
+				minFire = parseValue(token, value, 1, AirportAttributes.MAX_FIRE_CATEGORY);
+				break;
+			case "paved":
+				if (value != null)
+				{
+					throw new IllegalArgumentException("Requirement paved takes no value: " + token);
+				}
+				paved = true;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown requirement: " + token);
+			}
+		}
+		return new CapabilityFilter(minRunway, maxElevation, paved, minFire);
+	}
+
+	private static int parseValue(String token, String value, int min, int max)
+	{
+		if (value == null || value.isEmpty())
+		{
+			throw new IllegalArgumentException("Requirement has no value: " + token);
+		}
+		int number;
+		try {
+			number = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Requirement value is not a number: " + token, e);
+		}
+		if (number < min || number > max)
+		{
+			throw new IllegalArgumentException("Requirement value must be "
+					+ (max == Integer.MAX_VALUE ? "at least " + min : "between " + min + " and " + max) 
+					+ ": " + token);
+		}
+		return number;
+	}
+
+	/**
+	 * Finds airports meeting all requirements.
+	 * @param attributes - attributes of airports
+	 * @return bit set of eligible airport ids
+	 */
+	public BitSet evaluate(AirportAttributes attributes)
+	{
+		final int size = attributes.size();
+		final int[] runway = attributes.runway;
+		final int[] elevation = attributes.elevation;
+		final byte[] surface = attributes.surface;
+		final byte[] fire = attributes.fire;
+		final boolean[] known = attributes.known;
+		final int maxElevation = this.maxElevation;
+		final byte minSurface = paved ? AirportAttributes.SURFACE_PAVED : AirportAttributes.SURFACE_UNKNOWN;
+
+		long[] words = new long[(size + 63) >>> 6];
+		for (int i = 0; i < size; i++)
+		{
+			boolean ok = known[i]
+					& runway[i] >= minRunway
+					& elevation[i] <= maxElevation
+					& (surface[i] == minSurface || minSurface == AirportAttributes.SURFACE_UNKNOWN)
+					& fire[i] >= minFire;
+			words[i >>> 6] |= (ok ? 1L : 0L) << i;
+		}
+		return BitSet.valueOf(words);
+	}
+}
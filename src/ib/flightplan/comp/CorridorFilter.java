@@ -0,0 +1,137 @@
+package ib.flightplan.comp;
+
+import ib.flightplan.Main;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Columnar view of airport database used for range checks.
+ * <p>
+ * Coordinates are kept in primitive arrays, so range tests read them directly
+ * instead of following Airport and Point references for every airport.
+ * Results should be the same as calling Point.isInRange() and
+ * Point.calculateDistance() for every airport, see Flight.COLUMNAR for
+ * comparing both.
+ */
+public class CorridorFilter {
+	private static final double DISTANCE_FAC_SQ = Main.DISTANCE_FAC*Main.DISTANCE_FAC;
+
+	private Airport[] airports;
+	private double[] xs;
+	private double[] ys;
+	private boolean[] mask;
+
+	public CorridorFilter(Collection<Airport> database)
+	{
+		int size = database.size();
+		this.airports = new Airport[size];
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.mask = new boolean[size];
+
+		int i = 0;
+		for (Airport airport : database) {
+			airports[i] = airport;
+			xs[i] = airport.getLocation().x;
+			ys[i] = airport.getLocation().y;
+			i++;
+		}
+	}
+
+	/**
+	 * Marks all airports in range of given point, keeping those already marked.
+	 * @param p - point to check against
+	 * @param range - range in km
+	 */
+	public void markInRange(Point p, double range)
+	{
+		final double px = p.x;
+		final double py = p.y;
+		final double limit = range*range;
+		final double[] xs = this.xs;
+		final double[] ys = this.ys;
+		final boolean[] mask = this.mask;
+
+		for (int i = 0; i < xs.length; i++)
+		{
+			double dx = xs[i] - px;
+			double dy = ys[i] - py;
+			mask[i] |= DISTANCE_FAC_SQ*(dx*dx + dy*dy) <= limit;
+		}
+	}
+
+	/**
+	 * @return set of airports marked so far
+	 */
+	public HashSet<Airport> getMarked()
+	{
+		HashSet<Airport> marked = new HashSet<>();
+		for (int i = 0; i < mask.length; i++)
+		{
+			if (mask[i])
+			{
+				marked.add(airports[i]);
+			}
+		}
+		return marked;
+	}
+
+	/**
+	 * Finds airport closest to given point that is in range.
+	 * @param p - point to check against
+	 * @param range - range in km
+	 * @param maxDistance - only airports closer than that are considered
+	 * @return closest airport, null if there is no airport in range
+	 */
+	public Airport getClosest(Point p, double range, double maxDistance)
+	{
+		final double px = p.x;
+		final double py = p.y;
+		final double limit = range*range;
+		final double[] xs = this.xs;
+		final double[] ys = this.ys;
+
+		int index = -1;
+		double mindist = maxDistance;
+		for (int i = 0; i < xs.length; i++)
+		{
+			double dx = xs[i] - px;
+			double dy = ys[i] - py;
+			double sq = dx*dx + dy*dy;
+			if (DISTANCE_FAC_SQ*sq <= limit)
+			{
+				double curDist = Main.DISTANCE_FAC*Math.sqrt(sq);
+				if (curDist < mindist)
+				{
+					index = i;
+					mindist = curDist;
+				}
+			}
+		}
+		return index < 0 ? null : airports[index];
+	}
+
+	/**
+	 * Excludes airport from further checks.
+	 * @param airport - airport to be removed
+	 */
+	public void remove(Airport airport)
+	{
+		for (int i = 0; i < airports.length; i++)
+		{
+			if (airports[i] == airport)
+			{
+				//NaN never passes range check
+				xs[i] = Double.NaN;
+				ys[i] = Double.NaN;
+				mask[i] = false;
+			}
+		}
+	}
+
+	public int size()
+	{
+		return airports.length;
+	}
+}
@@ -4,12 +4,21 @@ import ib.flightplan.exception.NoAirportInRangeException;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 
 public class Flight {
 	
+	/**
+	 * Range checks use columnar CorridorFilter (structure of arrays) unless 
+	 * -Dflightplan.scalar=true is given. Both must give the same output, 
+	 * LoadTest -verify compares them.
+	 */
+	public static final boolean COLUMNAR = !Boolean.getBoolean("flightplan.scalar");
+	
 	private Airport start;
 	private Airport destination;
 	private ArrayList<Airport> emLandings;
@@ -17,6 +26,12 @@ public class Flight {
 	private double avgSpeed;
 	private double rangeOfEmergency;
 	private Date depTime;
+	private long timeLimitNanos = 0;
+	private long started = 0;
+	private volatile boolean cancelled = false;
+	private double covered;
+	private BitSet eligible = null;
+	private boolean columnar = COLUMNAR;
 
 	
 	public Flight(Airport start, Airport destination, double range, Date departure, double speed) {
@@ -28,14 +43,95 @@ public class Flight {
 		this.distance = Point.calculateDistance(start.getLocation(), destination.getLocation());
 	}
 	
+	/**
+	 * Limits computation time. After time limit is exceeded algorithms stop and
+	 * return emergency landings found so far.
+	 * @param millis - time limit in milliseconds, counted from start of each 
+	 * computation; 0 for no limit
+	 */
+	public void setTimeLimit(long millis)
+	{
+		this.timeLimitNanos = millis > 0 ? TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+	}
+	
+	/**
+	 * Chooses between columnar and scalar range checks, default is COLUMNAR.
+	 * @param columnar - true for CorridorFilter, false for per-airport checks
+	 */
+	public void setColumnar(boolean columnar)
+	{
+		this.columnar = columnar;
+	}
+	
+	/**
+	 * Restricts emergency landings to airports meeting capability requirements,
+	 * see CapabilityFilter.evaluate(). Start and destination are kept as candidates
+	 * even if they do not meet requirements.
+	 * @param eligible - bit set of eligible airport ids, null for all airports
+	 */
+	public void setEligibleAirports(BitSet eligible)
+	{
+		this.eligible = eligible;
+	}
+	
+	/**
+	 * Stops running computation, which returns emergency landings found so far.
+	 * Can be called from another thread, also before computation starts.
+	 * Cancellation is permanent: every later computation of this flight stops
+	 * at once, so a new Flight must be created to compute it again.
+	 */
+	public void cancel()
+	{
+		this.cancelled = true;
+	}
+	
+	/**
+	 * @return true if the computation should stop: it was cancelled, interrupted 
+	 * or its time limit was exceeded
+	 */
+	private boolean isExpired()
+	{
+		//comparing elapsed time, start + limit could overflow
+		return cancelled || (timeLimitNanos > 0 && System.nanoTime() - started > timeLimitNanos) 
+				|| Thread.currentThread().isInterrupted();
+	}
+	
 	/**
 	 * Main computation method. 
+	 * <p>
+	 * If time limit is exceeded or computation is cancelled, emergency landings
+	 * found so far are printed, see isComplete() and getCoveredDistance().
 	 * @param algorithm - algorithm which should be used in computation
 	 * @param database - database of all airports
 	 * @throws NoAirportInRangeException if range is insufficient
 	 */
 	public void computateFlight(int algorithm, HashSet<Airport> database) throws NoAirportInRangeException
 	{
+		findEmergencyLandings(algorithm, database);
+		SimpleDateFormat fd = new SimpleDateFormat("HH:mm:ss");
+		
+		for (Airport airport : emLandings) {
+			Date time = timeOfPassing(airport);
+			System.out.println(airport.toString() + " " + fd.format(time));
+		}
+		if (!isComplete())
+		{
+			System.err.printf("\nWARNING: Computation time limit exceeded!\n"
+					+ "Emergency landings cover only %.0f of %.0f km of flight path.\n", covered, distance);
+		}
+	}
+	
+	/**
+	 * Computes emergency landings without printing them.
+	 * @param algorithm - algorithm which should be used in computation
+	 * @param database - database of all airports, it is not modified
+	 * @return list of emergency landings, may be partial - see isComplete()
+	 * @throws NoAirportInRangeException if range is insufficient
+	 */
+	public ArrayList<Airport> findEmergencyLandings(int algorithm, HashSet<Airport> database) throws NoAirportInRangeException
+	{
+		covered = 0;
+		started = System.nanoTime();
 		HashSet<Airport> tmp = getClosest(database);
 		
 		switch (algorithm) {
@@ -52,12 +148,31 @@ public class Flight {
 			emLandings = algorithmA(tmp);
 			break;
 		}
-		SimpleDateFormat fd = new SimpleDateFormat("HH:mm:ss");
-		
-		for (Airport airport : emLandings) {
-			Date time = timeOfPassing(airport);
-			System.out.println(airport.toString() + " " + fd.format(time));
-		}
+		return emLandings;
+	}
+	
+	/**
+	 * @return emergency landings found by last computation
+	 */
+	public ArrayList<Airport> getEmergencyLandings()
+	{
+		return this.emLandings;
+	}
+	
+	/**
+	 * @return length of flight path in km covered by emergency landings
+	 */
+	public double getCoveredDistance()
+	{
+		return this.covered;
+	}
+	
+	/**
+	 * @return false if last computation was stopped before covering whole flight path
+	 */
+	public boolean isComplete()
+	{
+		return this.covered >= this.distance;
 	}
 	
 	/**
@@ -94,12 +209,29 @@ public class Flight {
 	 * It divides flight's path in equal increments, based on the emergency
 	 * range of aircraft, then finds all airports within emergency range from
 	 * that points.
+	 * <p>
+	 * Airports which are not eligible, other than start and destination, are
+	 * removed before any range checks.
 	 *  
 	 * @param database - full airport database
 	 * @return cropped database of airports
 	 */
 	private HashSet<Airport> getClosest(HashSet<Airport> database)
 	{
+		//remove airports not meeting capability requirements
+		if (eligible != null)
+		{
+			HashSet<Airport> capable = new HashSet<>();
+			for (Airport airport : database) {
+				if (airport == start || airport == destination 
+						|| (airport.getId() >= 0 && eligible.get(airport.getId())))
+				{
+					capable.add(airport);
+				}
+			}
+			database = capable;
+		}
+		
 		//define variables
 		HashSet<Airport> closest = new HashSet<>();
 		Point startP = start.getLocation();
@@ -116,13 +248,20 @@ public class Flight {
 		
 		//set current point		
 		current.clone(startP);
+		CorridorFilter columns = columnar ? new CorridorFilter(database) : null;
 		
-		for (int i = 0; i <= steps ; i++ )
+		for (int i = 0; i <= steps && !isExpired(); i++ )
 		{
 			//increment current position
 			current.x += incX;
 			current.y += incY;
 			
+			if (columnar)
+			{
+				columns.markInRange(current, rangeOfEmergency);
+				continue;
+			}
+			
 			//check the database for airports in range of emergency, add them to new database
 			for (Airport airport : database) {
 				if (airport.isInRange(current, rangeOfEmergency))
@@ -133,7 +272,7 @@ public class Flight {
 				}
 			}
 		}
-		return closest;		
+		return columnar ? columns.getMarked() : closest;		
 	}
 	
 	/**
@@ -215,9 +354,16 @@ public class Flight {
 		
 		//set current point
 		current.clone(startP);
+		CorridorFilter columns = columnar ? new CorridorFilter(database) : null;
 		
 		for (int i = 0; i <= steps ; i++ )
 		{
+			if (isExpired())
+			{
+				covered = this.distance*i/(steps + 1);
+				return nearby;
+			}
+			
 			//increment location of current position
 			current.x += incX;
 			current.y += incY;
@@ -226,7 +372,8 @@ public class Flight {
 			if (!nearby.get(nearby.size()-1).isInRange(current, rangeOfEmergency))
 			{
 				//get closest airport to current position and add it to the list of emergency landings
-				Airport tmp = getClosestAirport(current, database);
+				Airport tmp = columnar ? columns.getClosest(current, rangeOfEmergency, this.distance)
+						: getClosestAirport(current, database);
 				if (tmp == null)
 				{
 					throw new NoAirportInRangeException();
@@ -234,6 +381,10 @@ public class Flight {
 				{
 					nearby.add(tmp);
 					database.remove(tmp);	//remove that airport from database, for optimization purposes
+					if (columnar)
+					{
+						columns.remove(tmp);
+					}
 				}
 			}
 
@@ -242,6 +393,7 @@ public class Flight {
 		{
 			nearby.add(destination);
 		}
+		covered = this.distance;
 		return nearby;
 	}
 	
@@ -281,23 +433,38 @@ public class Flight {
 		
 		//set current point
 		current.clone(startP);
+		CorridorFilter columns = columnar ? new CorridorFilter(database) : null;
 		
 		for (int i = 0; i <= steps ; i++ )
 		{
+			if (isExpired())
+			{
+				covered = this.distance*i/(steps + 1);
+				return nearby;
+			}
+			
 			//increment location of current position
 			current.x += incX;
 			current.y += incY;
 			
-			//get airports in range from current position
-			HashSet<Airport> tmp = new HashSet<>();
-			for (Airport airport : database) {
-				if (airport.isInRange(current, rangeOfEmergency)) {
-					tmp.add(airport);
+			Airport tmpA;
+			if (columnar)
+			{
+				//range check and closest airport in one pass over columns
+				tmpA = columns.getClosest(current, rangeOfEmergency, this.distance);
+			} else
+			{
+				//get airports in range from current position
+				HashSet<Airport> tmp = new HashSet<>();
+				for (Airport airport : database) {
+					if (airport.isInRange(current, rangeOfEmergency)) {
+						tmp.add(airport);
+					}
 				}
+				
+				//get closest airport from those in range
+				tmpA = getClosestAirport(current, tmp);
 			}
-			
-			//get closest airport from those in range
-			Airport tmpA = getClosestAirport(current, tmp);
 			if (tmpA == null)
 			{
 				throw new NoAirportInRangeException();
@@ -307,6 +474,7 @@ public class Flight {
 				nearby.add(tmpA);
 			}
 		}
+		covered = this.distance;
 		return nearby;
 	}
 
@@ -350,6 +518,12 @@ public class Flight {
 		double nextstep = 1;
 		for (double i = 0; i <= steps ; i++)
 		{
+			if (isExpired())
+			{
+				covered = this.distance*i/(steps + 1);
+				return nearby;
+			}
+			
 			//increment location of current position
 			current.x += incX;
 			current.y += incY;
@@ -396,6 +570,7 @@ public class Flight {
 		{
 			nearby.add(destination);
 		}
+		covered = this.distance;
 		return nearby;
 	}
 }